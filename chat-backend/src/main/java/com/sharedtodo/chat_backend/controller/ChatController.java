@@ -1,8 +1,10 @@
 package com.sharedtodo.chat_backend.controller;
 
 import com.sharedtodo.chat_backend.dto.ChatMessageDTO;
+import com.sharedtodo.chat_backend.dto.ChatMessageView;
 import com.sharedtodo.chat_backend.model.ChatMessage;
 import com.sharedtodo.chat_backend.repository.ChatMessageRepository;
+import com.sharedtodo.chat_backend.service.ChatHistoryService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
@@ -11,6 +13,7 @@ import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.UUID;
 
@@ -20,10 +23,13 @@ public class ChatController {
 
     private final SimpMessagingTemplate messagingTemplate;
     private final ChatMessageRepository chatMessageRepository;
+    private final ChatHistoryService historyService;
 
-    public ChatController(SimpMessagingTemplate messagingTemplate, ChatMessageRepository chatMessageRepository) {
+    public ChatController(SimpMessagingTemplate messagingTemplate, ChatMessageRepository chatMessageRepository,
+                          ChatHistoryService historyService) {
         this.messagingTemplate = messagingTemplate;
         this.chatMessageRepository = chatMessageRepository;
+        this.historyService = historyService;
     }
 
     // --- WebSocket: invio messaggi ---
@@ -33,15 +39,18 @@ public class ChatController {
 
         message.setTodoListId(UUID.fromString(todoListId));
         if (message.getCreatedAt() == null) message.setCreatedAt(LocalDateTime.now());
+        // il DB salva i timestamp al microsecondo: la vista in cache deve coincidere con quella riletta dal DB
+        message.setCreatedAt(message.getCreatedAt().truncatedTo(ChronoUnit.MICROS));
 
-        ChatMessage saved = chatMessageRepository.save(message);
+        ChatMessageView saved = ChatMessageView.from(chatMessageRepository.save(message));
+        historyService.append(saved);
 
         messagingTemplate.convertAndSend("/topic/todolist/" + todoListId, saved);
     }
 
     // --- REST: invio messaggi ---
     @PostMapping("/send")
-    public ResponseEntity<ChatMessage> sendMessageREST(@RequestBody ChatMessageDTO dto) {
+    public ResponseEntity<ChatMessageView> sendMessageREST(@RequestBody ChatMessageDTO dto) {
         if (dto.getContent() == null || dto.getUserId() == null || dto.getTodoListId() == null || dto.getUsername() == null) {
             return ResponseEntity.badRequest().build();
         }
@@ -51,9 +60,10 @@ public class ChatController {
         message.setUserId(UUID.fromString(dto.getUserId()));
         message.setTodoListId(UUID.fromString(dto.getTodoListId()));
         message.setUsername(dto.getUsername());
-        message.setCreatedAt(LocalDateTime.now());
+        message.setCreatedAt(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
 
-        ChatMessage saved = chatMessageRepository.save(message);
+        ChatMessageView saved = ChatMessageView.from(chatMessageRepository.save(message));
+        historyService.append(saved);
         messagingTemplate.convertAndSend("/topic/todolist/" + dto.getTodoListId(), saved);
 
         return ResponseEntity.status(HttpStatus.CREATED).body(saved);
@@ -61,12 +71,9 @@ public class ChatController {
 
     // --- REST: recupera cronologia ---
     @GetMapping("/todolist/{todoListId}")
-    public List<ChatMessage> getMessages(@PathVariable UUID todoListId) {
+    public List<ChatMessageView> getMessages(@PathVariable UUID todoListId) {
         if (todoListId == null) return List.of();
 
-        return chatMessageRepository.findAll().stream()
-                .filter(msg -> msg.getTodoListId() != null && msg.getTodoListId().equals(todoListId))
-                .sorted((a, b) -> a.getCreatedAt().compareTo(b.getCreatedAt()))
-                .toList();
+        return historyService.getHistory(todoListId);
     }
 }
@@ -0,0 +1,28 @@
+package com.sharedtodo.chat_backend.dto;
+
+import com.sharedtodo.chat_backend.model.ChatMessage;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Proiezione immutabile di un messaggio: usata per la cronologia (niente entity gestite)
+// e per il broadcast (costruita una sola volta per invio e condivisa da tutti i subscriber)
+public record ChatMessageView(
+        UUID id,
+        UUID userId,
+        UUID todoListId,
+        String username,
+        String content,
+        LocalDateTime createdAt
+) {
+    public static ChatMessageView from(ChatMessage message) {
+        return new ChatMessageView(
+                message.getId(),
+                message.getUserId(),
+                message.getTodoListId(),
+                message.getUsername(),
+                message.getContent(),
+                message.getCreatedAt()
+        );
+    }
+}
@@ -1,22 +1,27 @@
 package com.sharedtodo.chat_backend.repository;
 
+import com.sharedtodo.chat_backend.dto.ChatMessageView;
 import com.sharedtodo.chat_backend.model.ChatMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID> {
     List<ChatMessage> findByTodoListId(UUID todoListId); // non serve scrivere l'implementazione, Spring Data JPA la genera automaticamente
-    /*
-    Siccome al momento non sono necessarie query personalizzate, l'interfaccia rimane vuota.
-    Siccome estendiamo da JpaRepository, ereditiamo metodi CRUD di base come:
-    - save,
-    - findById,
-    - findAll,
-    - deleteById,
-    - ecc.
 
-    In futuro, se dovessimo avere bisogno di query personalizzate, potremmo aggiungerle qui.
+    // Cronologia in sola lettura: Spring Data proietta direttamente sul record, quindi i risultati
+    // non entrano nel persistence context (niente snapshot per il dirty checking)
+    List<ChatMessageView> findByTodoListIdOrderByCreatedAtAsc(UUID todoListId);
+
+    // Liste con più messaggi dalla data indicata, usate per il warmup all'avvio
+    @Query("select m.todoListId from ChatMessage m where m.createdAt >= :since group by m.todoListId order by count(m) desc")
+    List<UUID> findMostActiveTodoListIds(LocalDateTime since, Pageable pageable);
+    /*
+    Oltre ai metodi CRUD di base ereditati da JpaRepository (save, findById, findAll, deleteById, ecc.),
+    qui trovano posto le query derivate dal nome del metodo e quelle JPQL scritte con @Query.
     */
 }
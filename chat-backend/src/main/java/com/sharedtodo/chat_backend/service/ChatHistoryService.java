@@ -0,0 +1,253 @@
+package com.sharedtodo.chat_backend.service;
+
+import com.sharedtodo.chat_backend.dto.ChatMessageView;
+import com.sharedtodo.chat_backend.repository.ChatMessageRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class ChatHistoryService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatHistoryService.class);
+    private static final String TODOLIST_TOPIC = "/topic/todolist/";
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final Executor prefetchExecutor;
+    private final int cacheSize;
+    private final int maxMessages;
+    private final Duration ttl;
+    private final Clock clock;
+    private final Set<UUID> inFlight = ConcurrentHashMap.newKeySet();
+
+    // Cronologia completa delle liste attive: compute() blocca solo la lista interessata
+    private final Map<UUID, CachedHistory> cache = new ConcurrentHashMap<>();
+    // Caricamenti in corso: raccolgono i messaggi inviati mentre la query è in esecuzione
+    private final Map<UUID, PendingLoad> loading = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ChatHistoryService(ChatMessageRepository chatMessageRepository,
+                              @Value("${chat.history.cache-size:200}") int cacheSize,
+                              @Value("${chat.history.max-messages:500}") int maxMessages,
+                              @Value("${chat.history.ttl-seconds:30}") long ttlSeconds,
+                              @Value("${chat.prefetch.concurrency:2}") int prefetchConcurrency,
+                              @Value("${chat.prefetch.queue-capacity:50}") int prefetchQueueCapacity) {
+        this(chatMessageRepository, cacheSize, maxMessages, Duration.ofSeconds(ttlSeconds), Clock.systemUTC(),
+                newPrefetchExecutor(prefetchConcurrency, prefetchQueueCapacity));
+    }
+
+    ChatHistoryService(ChatMessageRepository chatMessageRepository, int cacheSize, int maxMessages,
+                       Duration ttl, Clock clock, Executor prefetchExecutor) {
+        if (cacheSize <= 0) throw new IllegalArgumentException("chat.history.cache-size deve essere positivo: " + cacheSize);
+        if (maxMessages <= 0) throw new IllegalArgumentException("chat.history.max-messages deve essere positivo: " + maxMessages);
+        if (ttl.isNegative()) throw new IllegalArgumentException("chat.history.ttl-seconds non può essere negativo: " + ttl);
+
+        this.chatMessageRepository = chatMessageRepository;
+        this.cacheSize = cacheSize;
+        this.maxMessages = maxMessages;
+        this.ttl = ttl;
+        this.clock = clock;
+        this.prefetchExecutor = prefetchExecutor;
+    }
+
+    // Pool limitato: se la coda è piena il prefetch viene semplicemente scartato,
+    // la cronologia verrà caricata alla prima richiesta
+    private static ExecutorService newPrefetchExecutor(int concurrency, int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "chat-prefetch-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (prefetchExecutor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    // --- cronologia: dalla cache se la lista ci sta, altrimenti una sola query come prima ---
+    public List<ChatMessageView> getHistory(UUID todoListId) {
+        CachedHistory cached = cache.get(todoListId);
+        if (cached == null || isExpired(cached)) return load(todoListId);
+
+        cached.touch(clock.instant());
+        if (cached.oversized()) return chatMessageRepository.findByTodoListIdOrderByCreatedAtAsc(todoListId);
+        return cached.messages();
+    }
+
+    // --- aggiorna la cronologia in cache dopo un invio ---
+    public void append(ChatMessageView message) {
+        cache.compute(message.todoListId(), (todoListId, current) -> {
+            PendingLoad pending = loading.get(todoListId);
+            if (pending != null) pending.add(message);
+            return current != null ? current.with(message, maxMessages) : null;
+        });
+    }
+
+    // --- prefetch in background, con concorrenza limitata ---
+    public void prefetch(UUID todoListId) {
+        if (isCached(todoListId)) return; // già in cache (o troppo lunga per esserlo)
+        if (!inFlight.add(todoListId)) return; // già in caricamento
+
+        try {
+            prefetchExecutor.execute(() -> {
+                try {
+                    load(todoListId);
+                } catch (RuntimeException e) {
+                    log.warn("Prefetch della cronologia fallito per la lista {}", todoListId, e);
+                } finally {
+                    inFlight.remove(todoListId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(todoListId);
+            log.debug("Prefetch scartato per la lista {}: coda piena", todoListId);
+        }
+    }
+
+    // Un client che si iscrive a /topic/todolist/{id} chiederà a breve la cronologia: la prepariamo
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        String destination = SimpMessageHeaderAccessor.wrap(event.getMessage()).getDestination();
+        if (destination == null || !destination.startsWith(TODOLIST_TOPIC)) return;
+
+        try {
+            prefetch(UUID.fromString(destination.substring(TODOLIST_TOPIC.length())));
+        } catch (IllegalArgumentException e) {
+            // destinazione non valida: niente prefetch
+        }
+    }
+
+    // Legge la cronologia dal DB (una query) e la mette in cache se rientra in maxMessages
+    List<ChatMessageView> load(UUID todoListId) {
+        PendingLoad pending = loading.computeIfAbsent(todoListId, id -> new PendingLoad());
+        try {
+            List<ChatMessageView> history = List.copyOf(chatMessageRepository.findByTodoListIdOrderByCreatedAtAsc(todoListId));
+            Instant now = clock.instant();
+
+            CachedHistory cached = cache.compute(todoListId, (id, current) -> {
+                if (current != null && !isExpired(current)) return current;
+                // se un altro caricamento ha già consumato i messaggi in attesa, il nostro risultato può essere vecchio
+                if (!loading.remove(id, pending)) return current;
+
+                CachedHistory loaded = CachedHistory.of(history, maxMessages, now);
+                for (ChatMessageView message : pending.messages()) {
+                    loaded = loaded.with(message, maxMessages);
+                }
+                return loaded;
+            });
+            evictIfNeeded();
+            return cached != null && !cached.oversized() ? cached.messages() : history;
+        } finally {
+            loading.remove(todoListId, pending);
+        }
+    }
+
+    boolean isCached(UUID todoListId) {
+        CachedHistory cached = cache.get(todoListId);
+        return cached != null && !isExpired(cached);
+    }
+
+    private boolean isExpired(CachedHistory cached) {
+        return cached.loadedAt().plus(ttl).isBefore(clock.instant());
+    }
+
+    // Prima le voci scadute, poi quelle lette meno di recente (LRU)
+    private void evictIfNeeded() {
+        if (cache.size() <= cacheSize) return;
+
+        cache.values().removeIf(this::isExpired);
+        while (cache.size() > cacheSize) {
+            cache.entrySet().stream()
+                    .min(Comparator.comparing(entry -> entry.getValue().lastAccess()))
+                    .ifPresent(entry -> cache.remove(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    // Cronologia di una lista in ordine cronologico; messages == null se supera maxMessages
+    // (la lista resta segnata come "troppo lunga" fino alla scadenza, così il prefetch non la rilegge)
+    static final class CachedHistory {
+        private final List<ChatMessageView> messages;
+        private final Instant loadedAt;
+        private volatile Instant lastAccess;
+
+        private CachedHistory(List<ChatMessageView> messages, Instant loadedAt, Instant lastAccess) {
+            this.messages = messages;
+            this.loadedAt = loadedAt;
+            this.lastAccess = lastAccess;
+        }
+
+        static CachedHistory of(List<ChatMessageView> history, int maxMessages, Instant now) {
+            return new CachedHistory(history.size() <= maxMessages ? history : null, now, now);
+        }
+
+        List<ChatMessageView> messages() { return messages; }
+        Instant loadedAt() { return loadedAt; }
+        Instant lastAccess() { return lastAccess; }
+        boolean oversized() { return messages == null; }
+
+        void touch(Instant now) {
+            lastAccess = now;
+        }
+
+        CachedHistory with(ChatMessageView message, int maxMessages) {
+            if (oversized()) return this;
+            for (ChatMessageView existing : messages) {
+                if (existing.id().equals(message.id())) return this; // già presente (es. letto dalla query)
+            }
+            if (messages.size() >= maxMessages) return new CachedHistory(null, loadedAt, lastAccess);
+
+            List<ChatMessageView> updated = new ArrayList<>(messages.size() + 1);
+            updated.addAll(messages);
+            int position = updated.size();
+            while (position > 0 && updated.get(position - 1).createdAt().isAfter(message.createdAt())) {
+                position--;
+            }
+            updated.add(position, message);
+            return new CachedHistory(List.copyOf(updated), loadedAt, lastAccess);
+        }
+    }
+
+    // Messaggi arrivati durante un caricamento; scritti e letti dentro cache.compute() sulla stessa lista
+    private static final class PendingLoad {
+        private final List<ChatMessageView> messages = new ArrayList<>();
+
+        synchronized void add(ChatMessageView message) {
+            messages.add(message);
+        }
+
+        synchronized List<ChatMessageView> messages() {
+            return List.copyOf(messages);
+        }
+    }
+}
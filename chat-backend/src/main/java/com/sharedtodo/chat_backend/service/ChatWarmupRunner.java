@@ -0,0 +1,68 @@
+package com.sharedtodo.chat_backend.service;
+
+import com.sharedtodo.chat_backend.dto.ChatMessageView;
+import com.sharedtodo.chat_backend.repository.ChatMessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+// Gli ApplicationRunner terminano prima che l'applicazione venga segnalata come pronta:
+// il primo utente dopo un deploy trova già la cronologia in cache e i percorsi caldi compilati
+@Component
+public class ChatWarmupRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatWarmupRunner.class);
+    private static final int ENCODED_MESSAGES_PER_LIST = 50;
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatHistoryService historyService;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final boolean enabled;
+    private final int lists;
+    private final int windowDays;
+
+    public ChatWarmupRunner(ChatMessageRepository chatMessageRepository,
+                            ChatHistoryService historyService,
+                            SimpMessagingTemplate messagingTemplate,
+                            @Value("${chat.warmup.enabled:true}") boolean enabled,
+                            @Value("${chat.warmup.lists:20}") int lists,
+                            @Value("${chat.warmup.window-days:7}") int windowDays) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.historyService = historyService;
+        this.messagingTemplate = messagingTemplate;
+        this.enabled = enabled;
+        this.lists = lists;
+        this.windowDays = windowDays;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled || lists <= 0) return;
+
+        // un errore nel warmup non deve impedire l'avvio
+        try {
+            List<UUID> activeLists = chatMessageRepository.findMostActiveTodoListIds(
+                    LocalDateTime.now().minusDays(windowDays), PageRequest.of(0, lists));
+
+            for (UUID todoListId : activeLists) {
+                // cronologia in cache + conversione JSON usata dal broadcast, senza inviare nulla
+                List<ChatMessageView> history = historyService.load(todoListId);
+                for (ChatMessageView message : history.subList(Math.max(0, history.size() - ENCODED_MESSAGES_PER_LIST), history.size())) {
+                    messagingTemplate.getMessageConverter().toMessage(message, null);
+                }
+            }
+            log.info("Warmup chat completato: {} liste precaricate", activeLists.size());
+        } catch (RuntimeException e) {
+            log.warn("Warmup chat fallito, si prosegue senza cache precaricata", e);
+        }
+    }
+}
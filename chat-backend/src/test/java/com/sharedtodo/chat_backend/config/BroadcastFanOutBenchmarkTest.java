@@ -0,0 +1,198 @@
+package com.sharedtodo.chat_backend.config;
+
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.sharedtodo.chat_backend.dto.ChatMessageView;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
+
+// Misura il costo per messaggio del broadcast al crescere dei subscriber, senza DB:
+// template -> SimpleBrokerMessageHandler -> StompSubProtocolHandler -> N sessioni finte
+class BroadcastFanOutBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(BroadcastFanOutBenchmarkTest.class);
+    private static final int[] SUBSCRIBER_COUNTS = {1, 10, 100, 500};
+    private static final int WARMUP_MESSAGES = 300;
+    private static final int MEASURED_MESSAGES = 300;
+
+    @Test
+    void fanOut_convertsOncePerMessageButEncodesOneFramePerSubscriber() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isCurrentThreadCpuTimeSupported());
+
+        Map<Integer, Result> results = new HashMap<>();
+        for (int subscribers : SUBSCRIBER_COUNTS) {
+            results.put(subscribers, measure(threads, subscribers));
+        }
+
+        log.info("payload JSON: {} byte", results.get(1).payloadBytes);
+        log.info("subscriber | conversioni/msg | frame/msg | byte allocati/msg | CPU us/msg");
+        for (int subscribers : SUBSCRIBER_COUNTS) {
+            Result r = results.get(subscribers);
+            log.info(String.format("%10d | %15.1f | %9.1f | %17d | %10.1f", subscribers,
+                    (double) r.conversions / MEASURED_MESSAGES, (double) r.frames / MEASURED_MESSAGES,
+                    r.allocatedBytes / MEASURED_MESSAGES, r.cpuNanos / 1000.0 / MEASURED_MESSAGES));
+        }
+
+        for (int subscribers : SUBSCRIBER_COUNTS) {
+            Result r = results.get(subscribers);
+            // il converter JSON gira una sola volta per messaggio, qualunque sia il numero di subscriber
+            assertThat(r.conversions).isEqualTo(MEASURED_MESSAGES);
+            // il frame STOMP viene invece codificato per ogni sessione
+            assertThat(r.frames).isEqualTo((long) subscribers * MEASURED_MESSAGES);
+        }
+
+        // il costo che cresce con i subscriber è la codifica del frame: almeno una copia del payload per sessione
+        Result one = results.get(1);
+        Result many = results.get(500);
+        long perSubscriberBytes = (many.allocatedBytes - one.allocatedBytes) / MEASURED_MESSAGES / 499;
+        assertThat(perSubscriberBytes).isGreaterThanOrEqualTo(many.payloadBytes);
+    }
+
+    private Result measure(com.sun.management.ThreadMXBean threads, int subscribers) {
+        CountingConverter converter = new CountingConverter();
+        StompSubProtocolHandler stompHandler = new StompSubProtocolHandler();
+        Map<String, CountingSession> sessions = new HashMap<>();
+
+        MessageChannel clientOutbound = (message, timeout) -> {
+            MessageHeaders headers = message.getHeaders();
+            if (SimpMessageHeaderAccessor.getMessageType(headers) == SimpMessageType.MESSAGE) {
+                stompHandler.handleMessageToClient(sessions.get(SimpMessageHeaderAccessor.getSessionId(headers)), message);
+            }
+            return true;
+        };
+        SimpleBrokerMessageHandler broker = new SimpleBrokerMessageHandler(
+                mock(SubscribableChannel.class), clientOutbound, mock(SubscribableChannel.class), List.of("/topic"));
+        broker.start();
+
+        UUID todoListId = UUID.randomUUID();
+        String destination = "/topic/todolist/" + todoListId;
+        for (int i = 0; i < subscribers; i++) {
+            String sessionId = "session-" + i;
+            sessions.put(sessionId, new CountingSession(sessionId));
+            broker.handleMessage(simpMessage(SimpMessageType.CONNECT, sessionId, null, null));
+            broker.handleMessage(simpMessage(SimpMessageType.SUBSCRIBE, sessionId, "sub-" + i, destination));
+        }
+
+        SimpMessagingTemplate template = new SimpMessagingTemplate((message, timeout) -> {
+            broker.handleMessage(message);
+            return true;
+        });
+        template.setMessageConverter(converter);
+        ChatMessageView view = new ChatMessageView(UUID.randomUUID(), UUID.randomUUID(), todoListId,
+                "Pippo", "Ciao a tutti, questo è un messaggio di prova", LocalDateTime.of(2025, 1, 1, 12, 0));
+
+        for (int i = 0; i < WARMUP_MESSAGES; i++) {
+            template.convertAndSend(destination, view);
+        }
+        converter.conversions = 0;
+        sessions.values().forEach(s -> s.frames = 0);
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long cpuBefore = threads.getCurrentThreadCpuTime();
+        for (int i = 0; i < MEASURED_MESSAGES; i++) {
+            template.convertAndSend(destination, view);
+        }
+        long cpuNanos = threads.getCurrentThreadCpuTime() - cpuBefore;
+        long allocatedBytes = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        broker.stop();
+        long frames = sessions.values().stream().mapToLong(s -> s.frames).sum();
+        return new Result(converter.conversions, frames, allocatedBytes, cpuNanos, converter.lastPayloadBytes);
+    }
+
+    private static Message<byte[]> simpMessage(SimpMessageType type, String sessionId, String subscriptionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(type);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private record Result(long conversions, long frames, long allocatedBytes, long cpuNanos, int payloadBytes) { }
+
+    // Stesso converter JSON usato da Spring Boot, con un contatore delle serializzazioni
+    private static final class CountingConverter extends MappingJackson2MessageConverter {
+        private long conversions;
+        private int lastPayloadBytes;
+
+        CountingConverter() {
+            super(Jackson2ObjectMapperBuilder.json()
+                    .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                    .build());
+        }
+
+        @Override
+        protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+            conversions++;
+            Object converted = super.convertToInternal(payload, headers, conversionHint);
+            if (converted instanceof byte[] bytes) lastPayloadBytes = bytes.length;
+            return converted;
+        }
+    }
+
+    // Sessione WebSocket minima: conta i frame ricevuti senza allocare nulla
+    private static final class CountingSession implements WebSocketSession {
+        private final String id;
+        private final Map<String, Object> attributes = new HashMap<>();
+        private long frames;
+
+        CountingSession(String id) {
+            this.id = id;
+        }
+
+        @Override public String getId() { return id; }
+        @Override public URI getUri() { return null; }
+        @Override public HttpHeaders getHandshakeHeaders() { return HttpHeaders.EMPTY; }
+        @Override public Map<String, Object> getAttributes() { return attributes; }
+        @Override public Principal getPrincipal() { return null; }
+        @Override public InetSocketAddress getLocalAddress() { return null; }
+        @Override public InetSocketAddress getRemoteAddress() { return null; }
+        @Override public String getAcceptedProtocol() { return "v12.stomp"; }
+        @Override public void setTextMessageSizeLimit(int messageSizeLimit) { }
+        @Override public int getTextMessageSizeLimit() { return Integer.MAX_VALUE; }
+        @Override public void setBinaryMessageSizeLimit(int messageSizeLimit) { }
+        @Override public int getBinaryMessageSizeLimit() { return Integer.MAX_VALUE; }
+        @Override public List<WebSocketExtension> getExtensions() { return List.of(); }
+        @Override public void sendMessage(WebSocketMessage<?> message) {
+            if (message instanceof TextMessage) frames++;
+        }
+        @Override public boolean isOpen() { return true; }
+        @Override public void close() { }
+        @Override public void close(CloseStatus status) { }
+    }
+}
@@ -1,8 +1,10 @@
 package com.sharedtodo.chat_backend.controller;
 
 import com.sharedtodo.chat_backend.dto.ChatMessageDTO;
+import com.sharedtodo.chat_backend.dto.ChatMessageView;
 import com.sharedtodo.chat_backend.model.ChatMessage;
 import com.sharedtodo.chat_backend.repository.ChatMessageRepository;
+import com.sharedtodo.chat_backend.service.ChatHistoryService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpStatus;
@@ -15,19 +17,23 @@ import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.*;
 
 class ChatControllerTest {
 
     private ChatMessageRepository repository;
     private SimpMessagingTemplate messagingTemplate;
+    private ChatHistoryService historyService;
     private ChatController controller;
 
     @BeforeEach
     void setup() {
         repository = mock(ChatMessageRepository.class);
         messagingTemplate = mock(SimpMessagingTemplate.class);
-        controller = new ChatController(messagingTemplate, repository);
+        historyService = mock(ChatHistoryService.class);
+        controller = new ChatController(messagingTemplate, repository, historyService);
     }
 
     // --- sendMessageWS ---
@@ -44,14 +50,28 @@ class ChatControllerTest {
         assertThat(message.getCreatedAt()).isNotNull();
 
         verify(repository).save(message);
-        verify(messagingTemplate).convertAndSend("/topic/todolist/" + todoListId, message);
+        verify(historyService).append(ChatMessageView.from(message));
+        verify(messagingTemplate).convertAndSend("/topic/todolist/" + todoListId, ChatMessageView.from(message));
+    }
+
+    @Test
+    void sendMessageWS_truncatesCreatedAtToMicros() {
+        ChatMessage message = new ChatMessage();
+        message.setCreatedAt(LocalDateTime.of(2025, 1, 1, 12, 0, 0, 123_456_789));
+        String todoListId = UUID.randomUUID().toString();
+
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        controller.sendMessageWS(todoListId, message);
+
+        assertThat(message.getCreatedAt()).isEqualTo(LocalDateTime.of(2025, 1, 1, 12, 0, 0, 123_456_000));
     }
 
     @Test
     void sendMessageWS_nullMessage() {
         String todoListId = UUID.randomUUID().toString();
         controller.sendMessageWS(todoListId, null);
-        verifyNoInteractions(repository, messagingTemplate);
+        verifyNoInteractions(repository, messagingTemplate, historyService);
     }
 
     @Test
@@ -59,7 +79,7 @@ class ChatControllerTest {
         ChatMessage message = new ChatMessage();
         controller.sendMessageWS(null, message);
         assertThat(message.getTodoListId()).isNull();
-        verifyNoInteractions(repository, messagingTemplate);
+        verifyNoInteractions(repository, messagingTemplate, historyService);
     }
 
     // --- sendMessageREST ---
@@ -73,23 +93,26 @@ class ChatControllerTest {
 
         when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
 
-        ResponseEntity<ChatMessage> response = controller.sendMessageREST(dto);
+        ResponseEntity<ChatMessageView> response = controller.sendMessageREST(dto);
 
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
-        ChatMessage savedMessage = response.getBody();
+        ChatMessageView savedMessage = response.getBody();
         assertThat(savedMessage).isNotNull();
-        assertThat(savedMessage.getContent()).isEqualTo("Hello");
-        assertThat(savedMessage.getUsername()).isEqualTo("Pippo");
-
-        verify(repository).save(savedMessage);
-        verify(messagingTemplate).convertAndSend("/topic/todolist/" + dto.getTodoListId(), savedMessage);
+        assertThat(savedMessage.content()).isEqualTo("Hello");
+        assertThat(savedMessage.username()).isEqualTo("Pippo");
+        assertThat(savedMessage.createdAt().getNano() % 1_000).isZero();
+
+        verify(repository).save(any(ChatMessage.class));
+        verify(historyService).append(same(savedMessage));
+        // lo stesso record viene usato sia per il broadcast che per la risposta REST
+        verify(messagingTemplate).convertAndSend(eq("/topic/todolist/" + dto.getTodoListId()), same(savedMessage));
     }
 
     @Test
     void sendMessageREST_badRequest() {
-        ResponseEntity<ChatMessage> response = controller.sendMessageREST(new ChatMessageDTO());
+        ResponseEntity<ChatMessageView> response = controller.sendMessageREST(new ChatMessageDTO());
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
-        verifyNoInteractions(repository, messagingTemplate);
+        verifyNoInteractions(repository, messagingTemplate, historyService);
     }
 
     @Test
@@ -98,52 +121,42 @@ class ChatControllerTest {
         dto.setContent("Hello");
         dto.setUserId(UUID.randomUUID().toString());
         // dto.setTodoListId null
-        ResponseEntity<ChatMessage> response = controller.sendMessageREST(dto);
+        ResponseEntity<ChatMessageView> response = controller.sendMessageREST(dto);
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
-        verifyNoInteractions(repository, messagingTemplate);
+        verifyNoInteractions(repository, messagingTemplate, historyService);
     }
 
     // --- getMessages ---
     @Test
-    void getMessages_filtersAndSorts() {
+    void getMessages_returnsHistoryFromService() {
         UUID todoListId = UUID.randomUUID();
 
-        ChatMessage m1 = new ChatMessage();
-        m1.setTodoListId(todoListId);
-        m1.setCreatedAt(LocalDateTime.now().minusMinutes(5));
+        ChatMessageView m1 = new ChatMessageView(UUID.randomUUID(), UUID.randomUUID(), todoListId,
+                "Pippo", "Ciao", LocalDateTime.now().minusMinutes(5));
+        ChatMessageView m2 = new ChatMessageView(UUID.randomUUID(), UUID.randomUUID(), todoListId,
+                "Pluto", "Ciao a te", LocalDateTime.now());
 
-        ChatMessage m2 = new ChatMessage();
-        m2.setTodoListId(todoListId);
-        m2.setCreatedAt(LocalDateTime.now());
+        when(historyService.getHistory(todoListId)).thenReturn(List.of(m1, m2));
 
-        ChatMessage m3 = new ChatMessage();
-        m3.setTodoListId(UUID.randomUUID()); // diverso todoListId
-        m3.setCreatedAt(LocalDateTime.now());
+        List<ChatMessageView> result = controller.getMessages(todoListId);
 
-        when(repository.findAll()).thenReturn(List.of(m1, m2, m3));
-
-        List<ChatMessage> result = controller.getMessages(todoListId);
-
-        // Ora i messaggi dovrebbero essere m1 e m2, ordinati per createdAt
         assertThat(result).containsExactly(m1, m2);
+        verifyNoInteractions(repository);
     }
 
     @Test
     void getMessages_nullTodoListId() {
-        List<ChatMessage> result = controller.getMessages(null);
+        List<ChatMessageView> result = controller.getMessages(null);
         assertThat(result).isEmpty();
+        verifyNoInteractions(repository, historyService);
     }
 
     @Test
-    void getMessages_messageWithNullTodoListId() {
+    void getMessages_noMessages() {
         UUID todoListId = UUID.randomUUID();
-        ChatMessage m1 = new ChatMessage();
-        m1.setTodoListId(null);
-        m1.setCreatedAt(LocalDateTime.now());
-
-        when(repository.findAll()).thenReturn(List.of(m1));
+        when(historyService.getHistory(todoListId)).thenReturn(List.of());
 
-        List<ChatMessage> result = controller.getMessages(todoListId);
+        List<ChatMessageView> result = controller.getMessages(todoListId);
         assertThat(result).isEmpty();
     }
 }
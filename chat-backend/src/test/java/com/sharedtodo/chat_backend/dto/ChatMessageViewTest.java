@@ -0,0 +1,43 @@
+package com.sharedtodo.chat_backend.dto;
+
+import com.sharedtodo.chat_backend.model.ChatMessage;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChatMessageViewTest {
+
+    @Test
+    void from_copiesAllFields() {
+        ChatMessage message = new ChatMessage();
+        message.setId(UUID.randomUUID());
+        message.setUserId(UUID.randomUUID());
+        message.setTodoListId(UUID.randomUUID());
+        message.setUsername("Pippo");
+        message.setContent("Hello");
+        message.setCreatedAt(LocalDateTime.of(2025, 1, 1, 12, 0));
+
+        ChatMessageView view = ChatMessageView.from(message);
+
+        assertThat(view.id()).isEqualTo(message.getId());
+        assertThat(view.userId()).isEqualTo(message.getUserId());
+        assertThat(view.todoListId()).isEqualTo(message.getTodoListId());
+        assertThat(view.username()).isEqualTo("Pippo");
+        assertThat(view.content()).isEqualTo("Hello");
+        assertThat(view.createdAt()).isEqualTo(message.getCreatedAt());
+    }
+
+    @Test
+    void from_isDetachedFromEntity() {
+        ChatMessage message = new ChatMessage();
+        message.setContent("Prima");
+
+        ChatMessageView view = ChatMessageView.from(message);
+        message.setContent("Dopo");
+
+        assertThat(view.content()).isEqualTo("Prima");
+    }
+}
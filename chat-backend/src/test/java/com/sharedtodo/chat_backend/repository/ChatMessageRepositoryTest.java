@@ -1,12 +1,17 @@
 package com.sharedtodo.chat_backend.repository;
 
+import com.sharedtodo.chat_backend.dto.ChatMessageView;
 import com.sharedtodo.chat_backend.model.ChatMessage;
 import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
 
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -20,6 +25,11 @@ class ChatMessageRepositoryTest {
     @Autowired private ChatMessageRepository repository;
     @Autowired private EntityManager entityManager;
 
+    // H2/Postgres salvano i timestamp al microsecondo (arrotondando): i valori usati nei confronti devono già esserlo
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
     private ChatMessage createSampleMessage() {
         ChatMessage msg = new ChatMessage();
         msg.setContent("Hello world");
@@ -145,6 +155,76 @@ class ChatMessageRepositoryTest {
         assertThat(messages).isEmpty();
     }
 
+    // --- Cronologia come proiezione ---
+    @Test
+    void testFindByTodoListIdOrderByCreatedAtAsc_returnsSortedProjections() {
+        UUID todoListId = UUID.randomUUID();
+        ChatMessage newer = createSampleMessage();
+        newer.setTodoListId(todoListId);
+        newer.setCreatedAt(now());
+        ChatMessage older = createSampleMessage();
+        older.setTodoListId(todoListId);
+        older.setCreatedAt(now().minusMinutes(5));
+        ChatMessage other = createSampleMessage(); // altra todoListId
+
+        repository.save(newer);
+        repository.save(older);
+        repository.save(other);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<ChatMessageView> messages = repository.findByTodoListIdOrderByCreatedAtAsc(todoListId);
+
+        assertThat(messages).extracting(ChatMessageView::id).containsExactly(older.getId(), newer.getId());
+        assertThat(messages.get(0).username()).isEqualTo("Pippo");
+        assertThat(messages.get(0).content()).isEqualTo("Hello world");
+    }
+
+    @Test
+    void testFindByTodoListIdOrderByCreatedAtAsc_doesNotLoadManagedEntities() {
+        UUID todoListId = UUID.randomUUID();
+        ChatMessage message = createSampleMessage();
+        message.setTodoListId(todoListId);
+        repository.save(message);
+        entityManager.flush();
+        entityManager.clear();
+
+        List<ChatMessageView> messages = repository.findByTodoListIdOrderByCreatedAtAsc(todoListId);
+
+        assertThat(messages).hasSize(1);
+        // la proiezione non registra entity nel persistence context
+        assertThat(entityManager.unwrap(Session.class).getStatistics().getEntityCount()).isZero();
+    }
+
+    // --- Liste più attive (warmup) ---
+    @Test
+    void testFindMostActiveTodoListIds_orderedByMessageCount() {
+        UUID busy = UUID.randomUUID();
+        UUID quiet = UUID.randomUUID();
+        UUID old = UUID.randomUUID();
+
+        for (int i = 0; i < 3; i++) {
+            ChatMessage m = createSampleMessage();
+            m.setTodoListId(busy);
+            repository.save(m);
+        }
+        ChatMessage q = createSampleMessage();
+        q.setTodoListId(quiet);
+        repository.save(q);
+        for (int i = 0; i < 5; i++) {
+            ChatMessage m = createSampleMessage();
+            m.setTodoListId(old);
+            m.setCreatedAt(now().minusDays(30)); // fuori dalla finestra
+            repository.save(m);
+        }
+
+        List<UUID> ids = repository.findMostActiveTodoListIds(now().minusDays(7), PageRequest.of(0, 10));
+        assertThat(ids).containsExactly(busy, quiet);
+
+        List<UUID> top = repository.findMostActiveTodoListIds(now().minusDays(7), PageRequest.of(0, 1));
+        assertThat(top).containsExactly(busy);
+    }
+
     // --- Edge case: save null ---
     @Test
     void testSaveNullMessage_throwsException() {
@@ -0,0 +1,357 @@
+package com.sharedtodo.chat_backend.service;
+
+import com.sharedtodo.chat_backend.dto.ChatMessageView;
+import com.sharedtodo.chat_backend.repository.ChatMessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ChatHistoryServiceTest {
+
+    private static final Duration TTL = Duration.ofSeconds(30);
+
+    private ChatMessageRepository repository;
+    private List<Runnable> queuedTasks;
+    private MutableClock clock;
+    private ChatHistoryService service;
+
+    @BeforeEach
+    void setup() {
+        repository = mock(ChatMessageRepository.class);
+        queuedTasks = new ArrayList<>();
+        clock = new MutableClock();
+        // executor manuale: i task di prefetch vengono eseguiti solo quando il test lo decide
+        service = new ChatHistoryService(repository, 2, 10, TTL, clock, queuedTasks::add);
+    }
+
+    private ChatMessageView message(UUID todoListId, LocalDateTime createdAt) {
+        return new ChatMessageView(UUID.randomUUID(), UUID.randomUUID(), todoListId, "Pippo", "Ciao", createdAt);
+    }
+
+    private void whenHistory(UUID todoListId, List<ChatMessageView> history) {
+        when(repository.findByTodoListIdOrderByCreatedAtAsc(todoListId)).thenReturn(history);
+    }
+
+    private void runQueuedTasks() {
+        List<Runnable> tasks = new ArrayList<>(queuedTasks);
+        queuedTasks.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    private SessionSubscribeEvent subscribeEvent(String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setDestination(destination);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        return new SessionSubscribeEvent(this, message);
+    }
+
+    // --- costruttore ---
+    @Test
+    void constructor_rejectsNonPositiveSizes() {
+        assertThatThrownBy(() -> new ChatHistoryService(repository, 0, 10, TTL, clock, queuedTasks::add))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ChatHistoryService(repository, 2, 0, TTL, clock, queuedTasks::add))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ChatHistoryService(repository, 2, 10, Duration.ofSeconds(-1), clock, queuedTasks::add))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // --- getHistory ---
+    @Test
+    void getHistory_loadsOnceThenServesFromCache() {
+        UUID todoListId = UUID.randomUUID();
+        ChatMessageView m1 = message(todoListId, LocalDateTime.now().minusMinutes(1));
+        ChatMessageView m2 = message(todoListId, LocalDateTime.now());
+        whenHistory(todoListId, List.of(m1, m2));
+
+        assertThat(service.getHistory(todoListId)).containsExactly(m1, m2);
+        assertThat(service.getHistory(todoListId)).containsExactly(m1, m2);
+
+        verify(repository, times(1)).findByTodoListIdOrderByCreatedAtAsc(todoListId);
+    }
+
+    @Test
+    void getHistory_oversizedListIsReadFromDbWithOneQuery() {
+        service = new ChatHistoryService(repository, 2, 2, TTL, clock, queuedTasks::add);
+        UUID todoListId = UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now();
+        List<ChatMessageView> history = List.of(
+                message(todoListId, now.minusMinutes(2)),
+                message(todoListId, now.minusMinutes(1)),
+                message(todoListId, now));
+        whenHistory(todoListId, history);
+
+        assertThat(service.getHistory(todoListId)).isEqualTo(history);
+        assertThat(service.getHistory(todoListId)).isEqualTo(history);
+
+        // una query per lettura, come senza cache
+        verify(repository, times(2)).findByTodoListIdOrderByCreatedAtAsc(todoListId);
+        verifyNoMoreInteractions(repository);
+
+        // la lista è segnata come troppo lunga: il prefetch non la rilegge
+        service.prefetch(todoListId);
+        assertThat(queuedTasks).isEmpty();
+    }
+
+    @Test
+    void getHistory_reloadsAfterTtl() {
+        UUID todoListId = UUID.randomUUID();
+        whenHistory(todoListId, List.of());
+
+        service.getHistory(todoListId);
+        clock.advance(TTL.plusSeconds(1));
+        assertThat(service.isCached(todoListId)).isFalse();
+        service.getHistory(todoListId);
+
+        verify(repository, times(2)).findByTodoListIdOrderByCreatedAtAsc(todoListId);
+        assertThat(service.isCached(todoListId)).isTrue();
+    }
+
+    @Test
+    void getHistory_evictsLeastRecentlyUsedList() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        UUID c = UUID.randomUUID();
+        when(repository.findByTodoListIdOrderByCreatedAtAsc(any())).thenReturn(List.of());
+
+        service.getHistory(a);
+        clock.advance(Duration.ofSeconds(1));
+        service.getHistory(b);
+        clock.advance(Duration.ofSeconds(1));
+        service.getHistory(a); // a caricata per prima ma letta più di recente
+        clock.advance(Duration.ofSeconds(1));
+        service.getHistory(c);
+
+        assertThat(service.isCached(a)).isTrue();
+        assertThat(service.isCached(b)).isFalse();
+        assertThat(service.isCached(c)).isTrue();
+    }
+
+    // --- append ---
+    @Test
+    void append_updatesCachedHistoryInOrder() {
+        UUID todoListId = UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now();
+        ChatMessageView m1 = message(todoListId, now.minusMinutes(10));
+        ChatMessageView m3 = message(todoListId, now);
+        whenHistory(todoListId, List.of(m1, m3));
+        service.getHistory(todoListId);
+
+        ChatMessageView m4 = message(todoListId, now.plusMinutes(1));
+        ChatMessageView m2 = message(todoListId, now.minusMinutes(5)); // arriva in ritardo
+        service.append(m4);
+        service.append(m2);
+
+        assertThat(service.getHistory(todoListId)).containsExactly(m1, m2, m3, m4);
+        verify(repository, times(1)).findByTodoListIdOrderByCreatedAtAsc(todoListId);
+    }
+
+    @Test
+    void append_skipsMessageAlreadyReturnedByQuery() {
+        UUID todoListId = UUID.randomUUID();
+        // M è già salvato quando parte il caricamento, append(M) arriva dopo
+        ChatMessageView m = message(todoListId, LocalDateTime.now());
+        whenHistory(todoListId, List.of(m));
+        service.getHistory(todoListId);
+
+        service.append(m);
+
+        assertThat(service.getHistory(todoListId)).containsExactly(m);
+    }
+
+    @Test
+    void append_overBudgetFallsBackToDb() {
+        service = new ChatHistoryService(repository, 2, 2, TTL, clock, queuedTasks::add);
+        UUID todoListId = UUID.randomUUID();
+        LocalDateTime now = LocalDateTime.now();
+        ChatMessageView m1 = message(todoListId, now.minusMinutes(2));
+        ChatMessageView m2 = message(todoListId, now.minusMinutes(1));
+        ChatMessageView m3 = message(todoListId, now);
+        whenHistory(todoListId, List.of(m1, m2));
+        service.getHistory(todoListId);
+
+        service.append(m3);
+        whenHistory(todoListId, List.of(m1, m2, m3));
+
+        assertThat(service.getHistory(todoListId)).containsExactly(m1, m2, m3);
+        verify(repository, times(2)).findByTodoListIdOrderByCreatedAtAsc(todoListId);
+    }
+
+    @Test
+    void append_uncachedListIsIgnored() {
+        UUID todoListId = UUID.randomUUID();
+        service.append(message(todoListId, LocalDateTime.now()));
+        assertThat(service.isCached(todoListId)).isFalse();
+    }
+
+    @Test
+    void load_mergesMessageSentDuringQuery() {
+        UUID todoListId = UUID.randomUUID();
+        ChatMessageView late = message(todoListId, LocalDateTime.now());
+        // simula un invio che avviene mentre la query è in corso (e che la query non vede)
+        when(repository.findByTodoListIdOrderByCreatedAtAsc(todoListId)).thenAnswer(invocation -> {
+            service.append(late);
+            return List.of();
+        });
+
+        assertThat(service.getHistory(todoListId)).containsExactly(late);
+        assertThat(service.isCached(todoListId)).isTrue();
+    }
+
+    @Test
+    void load_writeToOtherListDoesNotDiscardResult() {
+        UUID todoListId = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        when(repository.findByTodoListIdOrderByCreatedAtAsc(todoListId)).thenAnswer(invocation -> {
+            service.append(message(other, LocalDateTime.now()));
+            return List.of();
+        });
+
+        service.getHistory(todoListId);
+
+        assertThat(service.isCached(todoListId)).isTrue();
+        assertThat(service.isCached(other)).isFalse();
+    }
+
+    // --- prefetch ---
+    @Test
+    void prefetch_loadsInBackgroundAndDeduplicates() {
+        UUID todoListId = UUID.randomUUID();
+        whenHistory(todoListId, List.of());
+
+        service.prefetch(todoListId);
+        service.prefetch(todoListId); // già in coda
+        assertThat(queuedTasks).hasSize(1);
+        verifyNoInteractions(repository);
+
+        runQueuedTasks();
+        assertThat(service.isCached(todoListId)).isTrue();
+
+        service.prefetch(todoListId); // già in cache
+        assertThat(queuedTasks).isEmpty();
+    }
+
+    @Test
+    void prefetch_rejectedTaskIsDropped() {
+        Executor saturated = task -> { throw new RejectedExecutionException("coda piena"); };
+        ChatHistoryService saturatedService = new ChatHistoryService(repository, 2, 10, TTL, clock, saturated);
+        UUID todoListId = UUID.randomUUID();
+
+        saturatedService.prefetch(todoListId);
+
+        verifyNoInteractions(repository);
+        assertThat(saturatedService.isCached(todoListId)).isFalse();
+
+        // dopo il rifiuto la lista può essere ripresa in un prefetch successivo
+        saturatedService.prefetch(todoListId);
+    }
+
+    @Test
+    void prefetch_failureIsSwallowedAndCanBeRetried() {
+        UUID todoListId = UUID.randomUUID();
+        when(repository.findByTodoListIdOrderByCreatedAtAsc(todoListId))
+                .thenThrow(new IllegalStateException("db giù"))
+                .thenReturn(List.of());
+
+        service.prefetch(todoListId);
+        runQueuedTasks();
+        assertThat(service.isCached(todoListId)).isFalse();
+
+        service.prefetch(todoListId);
+        runQueuedTasks();
+        assertThat(service.isCached(todoListId)).isTrue();
+    }
+
+    @Test
+    void prefetch_poolThreadsHaveDistinctNames() throws InterruptedException {
+        Set<String> threadNames = ConcurrentHashMap.newKeySet();
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        when(repository.findByTodoListIdOrderByCreatedAtAsc(any())).thenAnswer(invocation -> {
+            threadNames.add(Thread.currentThread().getName());
+            bothRunning.countDown();
+            bothRunning.await(5, TimeUnit.SECONDS); // tiene occupati entrambi i thread
+            return List.of();
+        });
+        ChatHistoryService pooled = new ChatHistoryService(repository, 10, 10, 30, 2, 10);
+
+        try {
+            pooled.prefetch(UUID.randomUUID());
+            pooled.prefetch(UUID.randomUUID());
+            assertThat(bothRunning.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            pooled.shutdown();
+        }
+
+        assertThat(threadNames).containsExactlyInAnyOrder("chat-prefetch-1", "chat-prefetch-2");
+    }
+
+    // --- onSubscribe ---
+    @Test
+    void onSubscribe_prefetchesTodoListTopic() {
+        UUID todoListId = UUID.randomUUID();
+        whenHistory(todoListId, List.of());
+
+        service.onSubscribe(subscribeEvent("/topic/todolist/" + todoListId));
+        runQueuedTasks();
+
+        assertThat(service.isCached(todoListId)).isTrue();
+    }
+
+    @Test
+    void onSubscribe_ignoresOtherDestinations() {
+        service.onSubscribe(subscribeEvent("/topic/other"));
+        service.onSubscribe(subscribeEvent("/topic/todolist/not-a-uuid"));
+        service.onSubscribe(subscribeEvent(null));
+
+        assertThat(queuedTasks).isEmpty();
+        verifyNoInteractions(repository);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T12:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.sharedtodo.chat_backend.service;
+
+import com.sharedtodo.chat_backend.dto.ChatMessageView;
+import com.sharedtodo.chat_backend.repository.ChatMessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ChatWarmupRunnerTest {
+
+    private ChatMessageRepository repository;
+    private ChatHistoryService historyService;
+    private SimpMessagingTemplate messagingTemplate;
+    private MessageConverter messageConverter;
+
+    @BeforeEach
+    void setup() {
+        repository = mock(ChatMessageRepository.class);
+        historyService = mock(ChatHistoryService.class);
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        messageConverter = mock(MessageConverter.class);
+        when(messagingTemplate.getMessageConverter()).thenReturn(messageConverter);
+    }
+
+    private ChatWarmupRunner runner(boolean enabled) {
+        return new ChatWarmupRunner(repository, historyService, messagingTemplate, enabled, 5, 7);
+    }
+
+    @Test
+    void run_preloadsMostActiveListsAndEncodesMessages() {
+        UUID todoListId = UUID.randomUUID();
+        ChatMessageView m = new ChatMessageView(UUID.randomUUID(), UUID.randomUUID(), todoListId,
+                "Pippo", "Ciao", LocalDateTime.now());
+        when(repository.findMostActiveTodoListIds(any(LocalDateTime.class), any(Pageable.class)))
+                .thenReturn(List.of(todoListId));
+        when(historyService.load(todoListId)).thenReturn(List.of(m));
+
+        runner(true).run(null);
+
+        verify(repository).findMostActiveTodoListIds(any(LocalDateTime.class), eq(PageRequest.of(0, 5)));
+        verify(historyService).load(todoListId);
+        verify(historyService, never()).getHistory(any());
+        verify(messageConverter).toMessage(m, null);
+        verify(messagingTemplate, never()).convertAndSend(any(String.class), any(Object.class));
+        verify(messagingTemplate, never()).send(any(String.class), any(Message.class));
+    }
+
+    @Test
+    void run_disabledDoesNothing() {
+        runner(false).run(null);
+        verifyNoInteractions(repository, historyService, messagingTemplate);
+    }
+
+    @Test
+    void run_failureDoesNotBlockStartup() {
+        when(repository.findMostActiveTodoListIds(any(LocalDateTime.class), any(Pageable.class)))
+                .thenThrow(new IllegalStateException("db giù"));
+
+        assertThatCode(() -> runner(true).run(null)).doesNotThrowAnyException();
+        verifyNoInteractions(historyService, messageConverter);
+    }
+}